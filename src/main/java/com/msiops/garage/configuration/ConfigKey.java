@@ -0,0 +1,80 @@
+/**
+ * Licensed to Media Science International (MSI) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. MSI
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.msiops.garage.configuration;
+
+import java.util.Objects;
+
+/**
+ * Handle for a configuration property. A handle hashes and interns its name
+ * once, when it is created, so lookups through a {@link Snapshot} need no
+ * string hashing and usually no string comparison.
+ * Handles are not tied to any particular snapshot and remain valid when
+ * configuration is reloaded. Keep them in constants:
+ *
+ * <pre>
+ * static final ConfigKey POOL_SIZE = ConfigKey.of(&quot;db.pool.size&quot;);
+ * </pre>
+ */
+public final class ConfigKey {
+
+    public static ConfigKey of(final String name) {
+
+        return new ConfigKey(Objects.requireNonNull(name).intern());
+
+    }
+
+    private final long hash;
+
+    private final String name;
+
+    private ConfigKey(final String name) {
+        this.name = name;
+        this.hash = PerfectHash.hash(name);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ConfigKey)) {
+            return false;
+        }
+        return this.name.equals(((ConfigKey) obj).name);
+
+    }
+
+    @Override
+    public int hashCode() {
+        return this.name.hashCode();
+    }
+
+    public String name() {
+        return this.name;
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigKey(" + this.name + ")";
+    }
+
+    long hash() {
+        return this.hash;
+    }
+
+}
@@ -21,6 +21,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,7 +51,7 @@ public interface Configuration {
 
     static Properties detach(final Properties props) {
 
-        final Properties rval = new Properties();
+        final Properties rval = Helper.detached(props);
 
         props.stringPropertyNames().forEach(k -> {
             rval.setProperty(k, props.getProperty(k));
@@ -85,6 +86,34 @@ public interface Configuration {
 
     }
 
+    static Properties of(final Class<?> key, final Secrets secrets) {
+
+        return Helper.load(key, Helper.environment(), new Properties(),
+                secrets);
+
+    }
+
+    static Properties of(final Class<?> key, final Properties defaults,
+            final Secrets secrets) {
+
+        return Helper.load(key, Helper.environment(), defaults, secrets);
+
+    }
+
+    static Properties of(final Class<?> key, final String environment,
+            final Secrets secrets) {
+
+        return Helper.load(key, environment, new Properties(), secrets);
+
+    }
+
+    static Properties of(final Class<?> key, final String environment,
+            final Properties defaults, final Secrets secrets) {
+
+        return Helper.load(key, environment, defaults, secrets);
+
+    }
+
     static Properties override(final Properties properties,
             final Collection<String> with) {
 
@@ -94,7 +123,7 @@ public interface Configuration {
 
     static Properties override(final Properties properties,
             final Collection<String> with, final Properties from) {
-        final Properties rval = new Properties(properties);
+        final Properties rval = Helper.derive(properties);
         with.forEach(k -> {
             final String ovr = from.getProperty(k);
             if (ovr != null) {
@@ -122,7 +151,7 @@ public interface Configuration {
     static Properties overrideFromVars(final Properties properties,
             final Map<String, String> with, final Map<String, String> from) {
 
-        final Properties rval = new Properties(properties);
+        final Properties rval = Helper.derive(properties);
 
         with.entrySet().forEach(e -> {
             if (from.containsKey(e.getKey())) {
@@ -134,4 +163,52 @@ public interface Configuration {
 
     }
 
+    /**
+     * Reveal a property value as characters, decoding it with the
+     * {@link Secrets} the properties were loaded with if it is secret.
+     * Properties derived with {@link #override} or {@link #detach} keep that
+     * binding. The caller owns the returned array and should zero it when
+     * done.
+     *
+     * @return the value or {@code null} if the property is not set.
+     *
+     * @throws IllegalArgumentException
+     *             if the value is secret and the properties were not loaded
+     *             with {@link Secrets}, or if it cannot be decoded.
+     */
+    static char[] reveal(final Properties properties, final String key) {
+
+        return Helper.reveal(properties, key);
+
+    }
+
+    /**
+     * Reveal a property value to an action and zero it when the action
+     * returns.
+     *
+     * @return {@code false} if the property is not set, in which case the
+     *         action is not run.
+     *
+     * @see #reveal(Properties, String)
+     */
+    static boolean reveal(final Properties properties, final String key,
+            final Consumer<char[]> action) {
+
+        return Helper.use(Helper.reveal(properties, key), action);
+
+    }
+
+    static Snapshot snapshot(final Properties properties) {
+
+        return Snapshot.of(properties);
+
+    }
+
+    static Snapshot snapshot(final Properties properties,
+            final Snapshot previous) {
+
+        return Snapshot.of(properties, previous);
+
+    }
+
 }
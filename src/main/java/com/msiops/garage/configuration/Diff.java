@@ -0,0 +1,78 @@
+/**
+ * Licensed to Media Science International (MSI) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. MSI
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.msiops.garage.configuration;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Keys that differ between two snapshots.
+ */
+public final class Diff {
+
+    private final Set<String> added;
+
+    private final Set<String> changed;
+
+    private final Snapshot from;
+
+    private final Set<String> removed;
+
+    private final Snapshot to;
+
+    Diff(final Snapshot from, final Snapshot to, final Set<String> added,
+            final Set<String> changed, final Set<String> removed) {
+        this.from = from;
+        this.to = to;
+        this.added = Collections.unmodifiableSet(added);
+        this.changed = Collections.unmodifiableSet(changed);
+        this.removed = Collections.unmodifiableSet(removed);
+    }
+
+    public Set<String> added() {
+        return this.added;
+    }
+
+    public Set<String> changed() {
+        return this.changed;
+    }
+
+    public Snapshot from() {
+        return this.from;
+    }
+
+    public boolean isEmpty() {
+        return this.added.isEmpty() && this.changed.isEmpty()
+                && this.removed.isEmpty();
+    }
+
+    public Set<String> removed() {
+        return this.removed;
+    }
+
+    public Snapshot to() {
+        return this.to;
+    }
+
+    @Override
+    public String toString() {
+        return "Diff(" + this.from.version() + " -> " + this.to.version()
+                + ", added=" + this.added + ", changed=" + this.changed
+                + ", removed=" + this.removed + ")";
+    }
+
+}
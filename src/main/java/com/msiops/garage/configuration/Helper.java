@@ -17,7 +17,10 @@
 package com.msiops.garage.configuration;
 
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 final class Helper {
 
@@ -25,6 +28,29 @@ final class Helper {
 
     public static final String ENVIRONMENT_PROPERTY = "garage.environment";
 
+    /**
+     * Create properties over the given defaults, bound to the same
+     * {@link Secrets} if the defaults are.
+     */
+    public static Properties derive(final Properties defaults) {
+
+        return defaults instanceof SecretProperties ? new SecretProperties(
+                defaults, ((SecretProperties) defaults).secrets())
+                : new Properties(defaults);
+
+    }
+
+    /**
+     * Create empty properties bound to the same {@link Secrets} as the given
+     * properties, if they are.
+     */
+    public static Properties detached(final Properties from) {
+
+        return from instanceof SecretProperties ? new SecretProperties(null,
+                ((SecretProperties) from).secrets()) : new Properties();
+
+    }
+
     public static String environment() {
         return System.getProperty(ENVIRONMENT_PROPERTY, DEFAULT_ENVIRONMENT);
     }
@@ -32,15 +58,64 @@ final class Helper {
     public static Properties load(final Class<?> key, final String env,
             final Properties defaults) {
 
+        return load(key, env, () -> derive(defaults));
+
+    }
+
+    public static Properties load(final Class<?> key, final String env,
+            final Properties defaults, final Secrets secrets) {
+
+        return load(key, env, () -> new SecretProperties(defaults, secrets));
+
+    }
+
+    private static Properties load(final Class<?> key, final String env,
+            final Supplier<Properties> create) {
+
         try (InputStream is = key.getResourceAsStream(env + ".properties")) {
 
-            final Properties rval = new Properties(defaults);
+            final Properties rval = create.get();
             rval.load(is);
             return rval;
 
         } catch (final Exception e) {
-            return new Properties(defaults);
+            return create.get();
+        }
+
+    }
+
+    public static char[] reveal(final Properties props, final String key) {
+
+        if (props instanceof SecretProperties) {
+            return ((SecretProperties) props).secrets().reveal(props, key);
+        }
+        final String value = props.getProperty(key);
+        if (Secrets.isSecret(value)) {
+            throw new IllegalArgumentException("'" + key
+                    + "' is secret and the properties have no secrets");
+        }
+        return value == null ? null : value.toCharArray();
+
+    }
+
+    /**
+     * Run an action on revealed characters and zero them afterwards.
+     *
+     * @return {@code false} if there are no characters, in which case the
+     *         action is not run.
+     */
+    public static boolean use(final char[] revealed,
+            final Consumer<char[]> action) {
+
+        if (revealed == null) {
+            return false;
+        }
+        try {
+            action.accept(revealed);
+        } finally {
+            Arrays.fill(revealed, '\0');
         }
+        return true;
 
     }
 
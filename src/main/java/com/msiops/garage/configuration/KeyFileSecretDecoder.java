@@ -0,0 +1,172 @@
+/**
+ * Licensed to Media Science International (MSI) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. MSI
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.msiops.garage.configuration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AES-GCM secret decoder keyed from a local file. The file holds a base64
+ * AES key of 128, 192, or 256 bits. Encoded values are the base64 of a
+ * random 96-bit IV followed by the ciphertext and tag.
+ */
+public final class KeyFileSecretDecoder implements SecretDecoder {
+
+    private static final String ALGORITHM = "AES";
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static final int IV_BYTES = 12;
+
+    private static final int TAG_BITS = 128;
+
+    public static void generateKeyFile(final Path keyFile) {
+
+        try {
+            final KeyGenerator gen = KeyGenerator.getInstance(ALGORITHM);
+            gen.init(256);
+            final byte[] raw = gen.generateKey().getEncoded();
+            try {
+                Files.write(keyFile, Base64.getEncoder().encode(raw));
+            } finally {
+                Arrays.fill(raw, (byte) 0);
+            }
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException("cannot generate key", e);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("cannot write '" + keyFile + "'", e);
+        }
+
+    }
+
+    public static KeyFileSecretDecoder of(final Path keyFile) {
+
+        final byte[] contents;
+        try {
+            contents = Files.readAllBytes(keyFile);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("cannot read '" + keyFile + "'", e);
+        }
+
+        final byte[] raw;
+        try {
+            raw = Base64.getMimeDecoder().decode(contents);
+        } finally {
+            Arrays.fill(contents, (byte) 0);
+        }
+
+        try {
+            if (raw.length != 16 && raw.length != 24 && raw.length != 32) {
+                throw new IllegalArgumentException("'" + keyFile
+                        + "' does not hold an AES key");
+            }
+            return new KeyFileSecretDecoder(new SecretKeySpec(raw, ALGORITHM));
+        } finally {
+            Arrays.fill(raw, (byte) 0);
+        }
+
+    }
+
+    private final SecretKeySpec key;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private KeyFileSecretDecoder(final SecretKeySpec key) {
+        this.key = key;
+    }
+
+    @Override
+    public char[] decode(final String encoded) {
+
+        final byte[] in = Base64.getDecoder().decode(encoded);
+        if (in.length <= IV_BYTES) {
+            throw new IllegalArgumentException("cannot decode secret");
+        }
+
+        byte[] plain = null;
+        CharBuffer chars = null;
+        try {
+            final Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, this.key, new GCMParameterSpec(
+                    TAG_BITS, in, 0, IV_BYTES));
+            plain = cipher.doFinal(in, IV_BYTES, in.length - IV_BYTES);
+            chars = StandardCharsets.UTF_8.newDecoder().decode(
+                    ByteBuffer.wrap(plain));
+            return Arrays.copyOf(chars.array(), chars.limit());
+        } catch (final GeneralSecurityException | CharacterCodingException e) {
+            throw new IllegalArgumentException("cannot decode secret", e);
+        } finally {
+            if (plain != null) {
+                Arrays.fill(plain, (byte) 0);
+            }
+            if (chars != null) {
+                Arrays.fill(chars.array(), '\0');
+            }
+        }
+
+    }
+
+    /**
+     * Encode a plaintext for use as {@code ENC(<encoded>)} in a properties
+     * file. The plaintext is not modified.
+     */
+    public String encode(final char[] plaintext) {
+
+        byte[] plain = null;
+        try {
+            final ByteBuffer bytes = StandardCharsets.UTF_8.newEncoder()
+                    .encode(CharBuffer.wrap(plaintext));
+            plain = Arrays.copyOf(bytes.array(), bytes.limit());
+            Arrays.fill(bytes.array(), (byte) 0);
+
+            final byte[] out = new byte[IV_BYTES + plain.length + TAG_BITS
+                    / 8];
+            final byte[] iv = new byte[IV_BYTES];
+            this.random.nextBytes(iv);
+            System.arraycopy(iv, 0, out, 0, IV_BYTES);
+
+            final Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, this.key, new GCMParameterSpec(
+                    TAG_BITS, iv));
+            cipher.doFinal(plain, 0, plain.length, out, IV_BYTES);
+            return Base64.getEncoder().encodeToString(out);
+        } catch (final GeneralSecurityException | CharacterCodingException e) {
+            throw new IllegalArgumentException("cannot encode secret", e);
+        } finally {
+            if (plain != null) {
+                Arrays.fill(plain, (byte) 0);
+            }
+        }
+
+    }
+
+}
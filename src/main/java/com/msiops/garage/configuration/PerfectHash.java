@@ -0,0 +1,215 @@
+/**
+ * Licensed to Media Science International (MSI) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. MSI
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.msiops.garage.configuration;
+
+import java.util.Arrays;
+
+/**
+ * Minimal perfect hash over a fixed set of 64-bit key hashes, built with the
+ * hash-and-displace method. Every hash in the set maps to a distinct slot in
+ * {@code [0, size)}. A hash outside the set maps to an arbitrary slot so
+ * callers must verify the key stored there.
+ *
+ * <p>
+ * Lookup is kept to a few multiplications: the seeded hash picks a bucket,
+ * and the bucket's displacement {@code d} picks the slot
+ * {@code f1 + d * f2}, where {@code f1} and {@code f2} are the low and high
+ * halves of the key hash. Both ranges are reduced by multiply-shift rather
+ * than division.
+ */
+final class PerfectHash {
+
+    private static final int BUCKET_LOAD = 3;
+
+    private static final int MAX_SEEDS = 16;
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Build a perfect hash over the given key hashes.
+     *
+     * @return the hash or {@code null} if none could be found, which in
+     *         practice happens only when the input contains duplicate hashes.
+     */
+    static PerfectHash build(final long[] hashes) {
+
+        final int n = hashes.length;
+        if (n == 0) {
+            return null;
+        }
+
+        final long[] sorted = hashes.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < n; ++i) {
+            if (sorted[i] == sorted[i - 1]) {
+                return null;
+            }
+        }
+
+        final int buckets = Math.max(1, n / BUCKET_LOAD);
+        final long maxDisplacement = Math.max(1 << 16, 32L * n);
+
+        for (int s = 0; s < MAX_SEEDS; ++s) {
+            final long seed = mix(GOLDEN * (s + 1));
+            final int[] displacements = place(hashes, buckets, seed,
+                    maxDisplacement);
+            if (displacements != null) {
+                return new PerfectHash(seed, displacements, n);
+            }
+        }
+        return null;
+
+    }
+
+    /**
+     * Hash a key. The result is stable across builds so it can be computed
+     * once and kept with the key.
+     */
+    static long hash(final String key) {
+
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); ++i) {
+            h ^= key.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+
+    }
+
+    private static int bucket(final long hash, final long seed,
+            final int buckets) {
+        return reduce((int) (((hash ^ seed) * GOLDEN) >>> 32), buckets);
+    }
+
+    private static long mix(final long z0) {
+        long z = z0;
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    private static int[] place(final long[] hashes, final int buckets,
+            final long seed, final long maxDisplacement) {
+
+        final int n = hashes.length;
+
+        /*
+         * group key indices by bucket: a counting sort into a flat array
+         */
+        final int[] start = new int[buckets + 1];
+        final int[] which = new int[n];
+        for (int i = 0; i < n; ++i) {
+            which[i] = bucket(hashes[i], seed, buckets);
+            ++start[which[i] + 1];
+        }
+        for (int b = 0; b < buckets; ++b) {
+            start[b + 1] += start[b];
+        }
+        final int[] fill = Arrays.copyOf(start, buckets);
+        final int[] members = new int[n];
+        for (int i = 0; i < n; ++i) {
+            members[fill[which[i]]++] = i;
+        }
+
+        /*
+         * place the largest buckets first while the table is emptiest
+         */
+        final Integer[] order = new Integer[buckets];
+        for (int b = 0; b < buckets; ++b) {
+            order[b] = b;
+        }
+        Arrays.sort(order,
+                (l, r) -> (start[r + 1] - start[r]) - (start[l + 1] - start[l]));
+
+        final boolean[] taken = new boolean[n];
+        final int[] displacements = new int[buckets];
+        final int[] slots = new int[n];
+
+        for (final int b : order) {
+            final int from = start[b];
+            final int to = start[b + 1];
+            if (from == to) {
+                break;
+            }
+            boolean placed = false;
+            for (int d = 0; d < maxDisplacement && !placed; ++d) {
+                placed = true;
+                for (int m = from; m < to && placed; ++m) {
+                    final int slot = slot(hashes[members[m]], d, n);
+                    if (taken[slot]) {
+                        placed = false;
+                    } else {
+                        for (int p = from; p < m; ++p) {
+                            if (slots[p] == slot) {
+                                placed = false;
+                                break;
+                            }
+                        }
+                    }
+                    slots[m] = slot;
+                }
+                if (placed) {
+                    for (int m = from; m < to; ++m) {
+                        taken[slots[m]] = true;
+                    }
+                    displacements[b] = d;
+                }
+            }
+            if (!placed) {
+                return null;
+            }
+        }
+
+        return displacements;
+
+    }
+
+    /*
+     * map a 32-bit value uniformly onto [0, range) without division
+     */
+    private static int reduce(final int x, final int range) {
+        return (int) (((x & 0xFFFFFFFFL) * range) >>> 32);
+    }
+
+    private static int slot(final long hash, final int displacement,
+            final int size) {
+        return reduce((int) hash + displacement * ((int) (hash >>> 32) | 1),
+                size);
+    }
+
+    private final int[] displacements;
+
+    private final long seed;
+
+    private final int size;
+
+    private PerfectHash(final long seed, final int[] displacements,
+            final int size) {
+        this.seed = seed;
+        this.displacements = displacements;
+        this.size = size;
+    }
+
+    int slot(final long hash) {
+
+        final int d = this.displacements[bucket(hash, this.seed,
+                this.displacements.length)];
+        return slot(hash, d, this.size);
+
+    }
+
+}
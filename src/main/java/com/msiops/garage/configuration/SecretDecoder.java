@@ -0,0 +1,37 @@
+/**
+ * Licensed to Media Science International (MSI) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. MSI
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.msiops.garage.configuration;
+
+/**
+ * Turns the encoded text of a secret property value into plaintext. A secret
+ * value is written as {@code ENC(<encoded>)} and the decoder receives only
+ * the text between the parentheses.
+ *
+ * <p>
+ * The caller owns the returned array and zeroes it when the plaintext is no
+ * longer needed, so a decoder must not keep a reference to it.
+ */
+@FunctionalInterface
+public interface SecretDecoder {
+
+    /**
+     * @throws IllegalArgumentException
+     *             if the value cannot be decoded.
+     */
+    char[] decode(String encoded);
+
+}
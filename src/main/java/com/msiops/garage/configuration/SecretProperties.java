@@ -0,0 +1,40 @@
+/**
+ * Licensed to Media Science International (MSI) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. MSI
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.msiops.garage.configuration;
+
+import java.util.Properties;
+
+/**
+ * Properties bound to the {@link Secrets} that reveal their secret values.
+ * Values are stored and read as written, so secret values stay encoded.
+ */
+final class SecretProperties extends Properties {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Secrets secrets;
+
+    SecretProperties(final Properties defaults, final Secrets secrets) {
+        super(defaults);
+        this.secrets = secrets;
+    }
+
+    Secrets secrets() {
+        return this.secrets;
+    }
+
+}
@@ -0,0 +1,277 @@
+/**
+ * Licensed to Media Science International (MSI) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. MSI
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.msiops.garage.configuration;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Decodes secret property values, written as {@code ENC(<encoded>)}, on
+ * first reveal and keeps the plaintext in a bounded cache. An entry expires a
+ * fixed time after it was decoded. When the cache is full the oldest entry is
+ * evicted. Plaintext is zeroed when its entry expires, is evicted, or is
+ * cleared. Nothing is cached when the capacity or the time to live is zero.
+ *
+ * <p>
+ * Plaintext leaves the cache only as a {@code char[]} copy from
+ * {@link #reveal(Properties, String)}. Reading a secret property through
+ * {@link Properties#getProperty(String)}, or copying it with
+ * {@link Configuration#detach(Properties)},
+ * {@link Configuration#asMap(Properties, String)}, or a {@link Snapshot},
+ * yields its {@code ENC(...)} text.
+ *
+ * <p>
+ * Given a scheduler, the cache purges each entry when it expires. Without
+ * one, expired entries are purged on the next reveal or on {@link #purge()},
+ * so a secret revealed once may stay cached until then. If the scheduler
+ * rejects a purge, plaintext that it would have expired is zeroed at once
+ * rather than left cached.
+ */
+public final class Secrets {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+
+    private static final String PREFIX = "ENC(";
+
+    private static final String SUFFIX = ")";
+
+    static boolean isSecret(final String value) {
+        return value != null && value.startsWith(PREFIX)
+                && value.endsWith(SUFFIX);
+    }
+
+    private static final class Entry {
+
+        final long expires;
+
+        final char[] plaintext;
+
+        Entry(final char[] plaintext, final long expires) {
+            this.plaintext = plaintext;
+            this.expires = expires;
+        }
+
+    }
+
+    private final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>();
+
+    private final int capacity;
+
+    private final Clock clock;
+
+    private final SecretDecoder decoder;
+
+    private final ScheduledExecutorService purger;
+
+    private boolean purgeScheduled;
+
+    private final long ttl;
+
+    public Secrets(final SecretDecoder decoder) {
+        this(decoder, DEFAULT_CAPACITY, DEFAULT_TTL);
+    }
+
+    public Secrets(final SecretDecoder decoder, final int capacity,
+            final Duration ttl) {
+        this(decoder, capacity, ttl, Clock.systemUTC());
+    }
+
+    public Secrets(final SecretDecoder decoder, final int capacity,
+            final Duration ttl, final Clock clock) {
+        this(decoder, capacity, ttl, clock, null);
+    }
+
+    public Secrets(final SecretDecoder decoder, final int capacity,
+            final Duration ttl, final ScheduledExecutorService purger) {
+        this(decoder, capacity, ttl, Clock.systemUTC(), Objects
+                .requireNonNull(purger));
+    }
+
+    /**
+     * @param purger
+     *            schedules purging of entries as they expire, or {@code null}
+     *            to purge only on reveal and on {@link #purge()}.
+     */
+    public Secrets(final SecretDecoder decoder, final int capacity,
+            final Duration ttl, final Clock clock,
+            final ScheduledExecutorService purger) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must be >= 0");
+        }
+        if (ttl.isNegative()) {
+            throw new IllegalArgumentException("ttl must be >= 0");
+        }
+        this.decoder = Objects.requireNonNull(decoder);
+        this.capacity = capacity;
+        this.ttl = ttl.toMillis();
+        this.clock = Objects.requireNonNull(clock);
+        this.purger = purger;
+    }
+
+    /**
+     * Zero and remove all cached plaintext.
+     */
+    public synchronized void clear() {
+
+        this.cache.values().forEach(e -> Arrays.fill(e.plaintext, '\0'));
+        this.cache.clear();
+
+    }
+
+    /**
+     * Zero and remove expired plaintext.
+     */
+    public synchronized void purge() {
+
+        final long now = this.clock.millis();
+        final Iterator<Entry> i = this.cache.values().iterator();
+        while (i.hasNext()) {
+            final Entry e = i.next();
+            if (e.expires > now) {
+                break;
+            }
+            Arrays.fill(e.plaintext, '\0');
+            i.remove();
+        }
+
+    }
+
+    /**
+     * @return the number of plaintexts currently cached.
+     */
+    public synchronized int size() {
+        return this.cache.size();
+    }
+
+    /**
+     * Reveal a property value as characters. A secret value is decoded or
+     * taken from the cache; any other value is returned as it is. The caller
+     * owns the returned array and should zero it when done.
+     *
+     * @return the value or {@code null} if the property is not set.
+     *
+     * @throws IllegalArgumentException
+     *             if a secret value cannot be decoded.
+     */
+    public char[] reveal(final Properties props, final String key) {
+
+        final String value = props.getProperty(key);
+        if (value == null) {
+            return null;
+        }
+        if (!isSecret(value)) {
+            return value.toCharArray();
+        }
+
+        final String encoded = value.substring(PREFIX.length(), value.length()
+                - SUFFIX.length());
+
+        purge();
+        synchronized (this) {
+            final Entry hit = this.cache.get(encoded);
+            if (hit != null) {
+                return hit.plaintext.clone();
+            }
+        }
+
+        /*
+         * decode outside the lock so a slow decoder does not stall readers of
+         * secrets that are already cached.
+         */
+        final char[] plaintext = this.decoder.decode(encoded);
+        final char[] rval = plaintext.clone();
+
+        synchronized (this) {
+            if (this.capacity == 0 || this.ttl == 0
+                    || this.cache.containsKey(encoded)) {
+                Arrays.fill(plaintext, '\0');
+            } else {
+                this.cache.put(encoded, new Entry(plaintext, this.clock.millis()
+                        + this.ttl));
+                final Iterator<Map.Entry<String, Entry>> i = this.cache
+                        .entrySet().iterator();
+                while (this.cache.size() > this.capacity) {
+                    Arrays.fill(i.next().getValue().plaintext, '\0');
+                    i.remove();
+                }
+                schedulePurge();
+            }
+        }
+
+        return rval;
+
+    }
+
+    /**
+     * Reveal a property value to an action and zero it when the action
+     * returns.
+     *
+     * @return {@code false} if the property is not set, in which case the
+     *         action is not run.
+     */
+    public boolean reveal(final Properties props, final String key,
+            final Consumer<char[]> action) {
+
+        return Helper.use(reveal(props, key), action);
+
+    }
+
+    /*
+     * purge on the scheduler and schedule the next purge, if any is needed
+     */
+    private synchronized void expire() {
+
+        this.purgeScheduled = false;
+        purge();
+        schedulePurge();
+
+    }
+
+    /*
+     * entries are in expiry order, so the first one sets the next purge
+     */
+    private synchronized void schedulePurge() {
+
+        if (this.purger == null || this.purgeScheduled
+                || this.cache.isEmpty()) {
+            return;
+        }
+        final long delay = this.cache.values().iterator().next().expires
+                - this.clock.millis();
+        try {
+            this.purger.schedule(this::expire, Math.max(0, delay),
+                    TimeUnit.MILLISECONDS);
+            this.purgeScheduled = true;
+        } catch (final RejectedExecutionException e) {
+            clear();
+        }
+
+    }
+
+}
@@ -0,0 +1,355 @@
+/**
+ * Licensed to Media Science International (MSI) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. MSI
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.msiops.garage.configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Indexed, read-only copy of a {@link Properties}, including its defaults.
+ * The keys present when the snapshot is taken are placed in a flat array by
+ * a minimal perfect hash, so reading through a {@link ConfigKey} costs a few
+ * arithmetic operations, a comparison against the stored key hash, and an
+ * array load. Once the hashes match the key names are compared, by
+ * reference first since both sides are interned, so an absent key whose hash
+ * collides with a captured one still reads as absent.
+ *
+ * <p>
+ * A snapshot holds no reference to the properties it was taken from. Later
+ * changes to them are not seen and a key absent when the snapshot was taken
+ * reads as absent. If no perfect hash can be built for the key set, lookups
+ * go through an ordinary map captured at the same time, with the same
+ * results.
+ *
+ * <p>
+ * Every snapshot has a version. Taking a snapshot with a previous snapshot
+ * returns the previous snapshot when nothing changed and otherwise a
+ * snapshot with a newer version. Keys are kept in order, split into groups
+ * at each new first dotted segment and at keys chosen by their hash, so a
+ * group holds a few dozen keys on average whatever the shape of the
+ * configuration. A group whose keys and values are unchanged is carried into
+ * the new snapshot as the same object, with the key hashes already computed
+ * for it, and {@link #diff(Snapshot)} skips groups that are the same object
+ * in both snapshots. Every other group is compared key by key.
+ */
+public final class Snapshot {
+
+    /**
+     * Run of consecutive keys. The same group in two snapshots means the same
+     * keys and values at its place in both.
+     */
+    private static final class Group {
+
+        final int size;
+
+        Group(final int size) {
+            this.size = size;
+        }
+
+    }
+
+    /*
+     * a key ends a group when this many high bits of its mixed hash are zero
+     */
+    private static final int GROUP_BITS = 6;
+
+    private static final long HIGH = 0xFFFFFFFF00000000L;
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    static Snapshot of(final Properties source) {
+
+        return of(source, null);
+
+    }
+
+    static Snapshot of(final Properties source, final Snapshot previous) {
+
+        final String[] sorted = source.stringPropertyNames().toArray(
+                new String[0]);
+        Arrays.sort(sorted);
+        final int n = sorted.length;
+
+        /*
+         * keys and values interleaved in key order
+         */
+        final String[] entries = new String[2 * n];
+        for (int i = 0; i < n; ++i) {
+            entries[2 * i] = sorted[i].intern();
+            entries[2 * i + 1] = source.getProperty(sorted[i]);
+        }
+
+        final long[] keyHashes = new long[n];
+        final List<Group> groups = new ArrayList<>();
+        boolean carriedAll = previous != null && previous.size() == n;
+        int p = 0;
+        int pAt = 0;
+        for (int from = 0; from < n;) {
+            final int to = end(entries, from, n);
+            Group carried = null;
+            if (previous != null) {
+                while (p < previous.groups.length
+                        && previous.entries[2 * pAt].compareTo(entries[2 * from]) < 0) {
+                    pAt += previous.groups[p++].size;
+                }
+                carried = previous.carry(entries, from, to, p, pAt);
+            }
+            if (carried == null) {
+                for (int i = from; i < to; ++i) {
+                    keyHashes[i] = PerfectHash.hash(entries[2 * i]);
+                }
+                groups.add(new Group(to - from));
+                carriedAll = false;
+            } else {
+                System.arraycopy(previous.keyHashes, pAt, keyHashes, from,
+                        to - from);
+                groups.add(carried);
+                pAt += carried.size;
+                ++p;
+            }
+            from = to;
+        }
+
+        if (carriedAll && groups.size() == previous.groups.length) {
+            return previous;
+        }
+
+        /*
+         * a new value under the same keys keeps the index
+         */
+        if (previous != null && sameKeys(entries, previous)) {
+            return new Snapshot(VERSIONS.incrementAndGet(), entries,
+                    keyHashes, groups, previous.index, previous.table,
+                    previous.fallback);
+        }
+
+        final PerfectHash index = PerfectHash.build(keyHashes);
+        long[] table = null;
+        Map<String, Integer> fallback = null;
+        if (index == null) {
+            fallback = new HashMap<>();
+            for (int i = 0; i < n; ++i) {
+                fallback.put(entries[2 * i], i);
+            }
+        } else {
+            table = new long[n];
+            for (int i = 0; i < n; ++i) {
+                table[index.slot(keyHashes[i])] = keyHashes[i] & HIGH | i;
+            }
+        }
+
+        return new Snapshot(VERSIONS.incrementAndGet(), entries, keyHashes,
+                groups, index, table, fallback);
+
+    }
+
+    /*
+     * end of the group starting at the given key: before the next first
+     * dotted segment or after a key whose mixed hash has its high bits clear
+     */
+    private static int end(final String[] entries, final int from,
+            final int n) {
+
+        final String first = entries[2 * from];
+        final int dot = first.indexOf('.');
+        for (int i = from;; ++i) {
+            if ((entries[2 * i].hashCode() * 0x9E3779B9) >>> 32 - GROUP_BITS == 0
+                    || i + 1 == n
+                    || dot < 0
+                    || !entries[2 * i + 2].regionMatches(0, first, 0, dot + 1)) {
+                return i + 1;
+            }
+        }
+
+    }
+
+    private static boolean sameKeys(final String[] entries,
+            final Snapshot previous) {
+
+        if (entries.length != previous.entries.length) {
+            return false;
+        }
+        for (int i = 0; i < entries.length; i += 2) {
+            if (entries[i] != previous.entries[i]) {
+                return false;
+            }
+        }
+        return true;
+
+    }
+
+    private static boolean sameValue(final String a, final String b) {
+        return a == b || a.equals(b);
+    }
+
+    private final String[] entries;
+
+    private final Map<String, Integer> fallback;
+
+    private final Group[] groups;
+
+    private final PerfectHash index;
+
+    private final long[] keyHashes;
+
+    /*
+     * by slot: the high half of the key hash and the key's position
+     */
+    private final long[] table;
+
+    private final long version;
+
+    private Snapshot(final long version, final String[] entries,
+            final long[] keyHashes, final List<Group> groups,
+            final PerfectHash index, final long[] table,
+            final Map<String, Integer> fallback) {
+        this.version = version;
+        this.entries = entries;
+        this.keyHashes = keyHashes;
+        this.groups = groups.toArray(new Group[groups.size()]);
+        this.index = index;
+        this.table = table;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Find the keys that differ between this snapshot and another. Groups
+     * that are the same object in both are skipped without looking at their
+     * keys.
+     */
+    public Diff diff(final Snapshot to) {
+
+        final Set<String> added = new TreeSet<>();
+        final Set<String> changed = new TreeSet<>();
+        final Set<String> removed = new TreeSet<>();
+
+        if (to != this) {
+            final int n = size();
+            final int m = to.size();
+            int i = 0;
+            int j = 0;
+            int g = 0;
+            int gAt = 0;
+            int h = 0;
+            int hAt = 0;
+            while (i < n || j < m) {
+                while (g < this.groups.length && gAt + this.groups[g].size <= i) {
+                    gAt += this.groups[g++].size;
+                }
+                while (h < to.groups.length && hAt + to.groups[h].size <= j) {
+                    hAt += to.groups[h++].size;
+                }
+                if (i == gAt && j == hAt && g < this.groups.length
+                        && h < to.groups.length
+                        && this.groups[g] == to.groups[h]) {
+                    i += this.groups[g].size;
+                    j += to.groups[h].size;
+                    continue;
+                }
+                final String k = i == n ? null : this.entries[2 * i];
+                final String ok = j == m ? null : to.entries[2 * j];
+                final int c = k == ok ? 0 : k == null ? 1 : ok == null ? -1
+                        : k.compareTo(ok);
+                if (c < 0) {
+                    removed.add(k);
+                    ++i;
+                } else if (c > 0) {
+                    added.add(ok);
+                    ++j;
+                } else {
+                    if (!sameValue(this.entries[2 * i + 1],
+                            to.entries[2 * j + 1])) {
+                        changed.add(k);
+                    }
+                    ++i;
+                    ++j;
+                }
+            }
+        }
+
+        return new Diff(this, to, added, changed, removed);
+
+    }
+
+    public String get(final ConfigKey key) {
+
+        final int at;
+        if (this.index == null) {
+            final Integer i = this.fallback.get(key.name());
+            if (i == null) {
+                return null;
+            }
+            at = i;
+        } else {
+            final long e = this.table[this.index.slot(key.hash())];
+            if (((e ^ key.hash()) & HIGH) != 0) {
+                return null;
+            }
+            at = (int) e;
+            final String k = this.entries[2 * at];
+            if (k != key.name() && !k.equals(key.name())) {
+                return null;
+            }
+        }
+        return this.entries[2 * at + 1];
+
+    }
+
+    public String get(final ConfigKey key, final String defaultValue) {
+
+        final String v = get(key);
+        return v == null ? defaultValue : v;
+
+    }
+
+    public int size() {
+        return this.keyHashes.length;
+    }
+
+    public long version() {
+        return this.version;
+    }
+
+    /*
+     * group g of this snapshot, starting at key position at, if it holds
+     * exactly the given keys and values
+     */
+    private Group carry(final String[] entries, final int from, final int to,
+            final int g, final int at) {
+
+        if (g == this.groups.length || this.groups[g].size != to - from) {
+            return null;
+        }
+        for (int i = 0; i < to - from; ++i) {
+            if (this.entries[2 * (at + i)] != entries[2 * (from + i)]
+                    || !sameValue(this.entries[2 * (at + i) + 1],
+                            entries[2 * (from + i) + 1])) {
+                return null;
+            }
+        }
+        return this.groups[g];
+
+    }
+
+}
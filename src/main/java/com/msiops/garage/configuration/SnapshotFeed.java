@@ -0,0 +1,211 @@
+/**
+ * Licensed to Media Science International (MSI) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. MSI
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.msiops.garage.configuration;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Publishes configuration changes to subscribers. Updates that arrive within
+ * a window of the first update of a burst are coalesced: when the window
+ * closes, each subscriber receives at most one {@link Diff}, from the last
+ * snapshot it saw to the current one. A subscriber is not notified when the
+ * burst leaves the configuration as that subscriber last saw it.
+ *
+ * <p>
+ * Subscribers are notified on the given scheduler, one at a time. An
+ * exception thrown by a subscriber goes to the feed's error handler with the
+ * subscriber, and does not reach the publisher or the other subscribers. A
+ * subscriber that failed is offered the changes again, from the snapshot it
+ * last accepted, one window later, and again each window until it accepts
+ * them or unsubscribes.
+ *
+ * <p>
+ * Snapshots are built outside the lock that guards the current snapshot, so
+ * {@link #current()} never waits for a publish.
+ */
+public final class SnapshotFeed {
+
+    private static final class Subscription {
+
+        final Consumer<? super Diff> subscriber;
+
+        Snapshot seen;
+
+        Subscription(final Consumer<? super Diff> subscriber,
+                final Snapshot seen) {
+            this.subscriber = subscriber;
+            this.seen = seen;
+        }
+
+    }
+
+    private volatile Snapshot current;
+
+    private final Object deliveryLock = new Object();
+
+    private final BiConsumer<? super Consumer<? super Diff>, ? super RuntimeException> onError;
+
+    private boolean pending;
+
+    private final Object publishLock = new Object();
+
+    private boolean scheduled;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final long window;
+
+    /**
+     * @param onError
+     *            receives a subscriber and the exception it threw. It runs
+     *            on the scheduler and must not throw.
+     */
+    public SnapshotFeed(
+            final Snapshot initial,
+            final Duration window,
+            final ScheduledExecutorService scheduler,
+            final BiConsumer<? super Consumer<? super Diff>, ? super RuntimeException> onError) {
+        if (Objects.requireNonNull(window).isNegative()) {
+            throw new IllegalArgumentException("window must be >= 0");
+        }
+        this.current = Objects.requireNonNull(initial);
+        this.window = window.toNanos();
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.onError = Objects.requireNonNull(onError);
+    }
+
+    public Snapshot current() {
+        return this.current;
+    }
+
+    /**
+     * Take a snapshot of new configuration and schedule notification if it
+     * differs from the current snapshot.
+     *
+     * @return the new current snapshot.
+     *
+     * @throws RejectedExecutionException
+     *             if notification cannot be scheduled. The snapshot still
+     *             becomes current and the next publish tries again to
+     *             schedule notification.
+     */
+    public Snapshot publish(final Properties properties) {
+
+        /*
+         * serialize publishes so each builds on the one before
+         */
+        synchronized (this.publishLock) {
+            final Snapshot next = Snapshot.of(properties, this.current);
+            synchronized (this) {
+                if (next != this.current) {
+                    this.current = next;
+                    this.pending = true;
+                }
+                schedule();
+            }
+            return next;
+        }
+
+    }
+
+    /**
+     * Subscribe to changes after the current snapshot.
+     */
+    public void subscribe(final Consumer<? super Diff> subscriber) {
+
+        this.subscriptions.add(new Subscription(
+                Objects.requireNonNull(subscriber), current()));
+
+    }
+
+    public void unsubscribe(final Consumer<? super Diff> subscriber) {
+
+        this.subscriptions.removeIf(s -> s.subscriber == subscriber);
+
+    }
+
+    private void flush() {
+
+        final Snapshot to;
+        synchronized (this) {
+            this.scheduled = false;
+            this.pending = false;
+            to = this.current;
+        }
+
+        /*
+         * serialize deliveries in case a slow flush overlaps the next one
+         */
+        boolean failed = false;
+        synchronized (this.deliveryLock) {
+            for (final Subscription s : this.subscriptions) {
+                if (s.seen == to) {
+                    continue;
+                }
+                final Diff diff = s.seen.diff(to);
+                try {
+                    if (!diff.isEmpty()) {
+                        s.subscriber.accept(diff);
+                    }
+                    s.seen = to;
+                } catch (final RuntimeException e) {
+                    this.onError.accept(s.subscriber, e);
+                    failed = true;
+                }
+            }
+        }
+
+        if (failed) {
+            synchronized (this) {
+                this.pending = true;
+                try {
+                    schedule();
+                } catch (final RejectedExecutionException e) {
+                    /*
+                     * still pending, so the next publish schedules the retry
+                     */
+                }
+            }
+        }
+
+    }
+
+    /*
+     * schedule a flush one window out unless one is already scheduled
+     */
+    private synchronized void schedule() {
+
+        if (this.pending && !this.scheduled) {
+            this.scheduler.schedule(this::flush, this.window,
+                    TimeUnit.NANOSECONDS);
+            this.scheduled = true;
+        }
+
+    }
+
+}
@@ -0,0 +1,467 @@
+/**
+ * Licensed to Media Science International (MSI) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. MSI
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package fn.com.msiops.garage.configuration;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.msiops.garage.configuration.ConfigKey;
+import com.msiops.garage.configuration.Configuration;
+import com.msiops.garage.configuration.Diff;
+import com.msiops.garage.configuration.Snapshot;
+
+/**
+ * Behavior with production-sized configuration. Timings are checked against
+ * a baseline measured in the same run, such as a plain {@link HashMap} or
+ * {@link Properties#load}, so the limits hold on slow and fast machines
+ * alike. Limits sit a few times above the observed ratios and catch large
+ * regressions, not small ones.
+ *
+ * <p>
+ * Runs in the {@code stress} profile: {@code mvn -Pstress verify}.
+ */
+public final class ConfigurationStressIT {
+
+    private static final int BATCH = 100;
+
+    private static final String ENVIRONMENT = "stress";
+
+    private static final int KEYS = 100_000;
+
+    private static final int OVERRIDE_DEPTH = 1_000;
+
+    private static final int PASSES = 8;
+
+    private static final int READERS = 4;
+
+    private static final int READS_PER_READER = 200_000;
+
+    private static final int SNAPSHOTS = 4;
+
+    private static final String WIDE_PREFIX = "wide";
+
+    /*
+     * limits
+     */
+
+    private static final double MAX_AS_MAP_TO_SCAN = 8;
+
+    private static final double MAX_DIFF_TO_BUILD = 0.1;
+
+    private static final double MAX_LOAD_TO_PROPERTIES_LOAD = 3;
+
+    private static final double MAX_OVERRIDE_CHAIN_SCALING = 5;
+
+    private static final double MAX_P50_TO_BASELINE = 4;
+
+    private static final double MAX_P99_TO_BASELINE = 10;
+
+    private static final long MAX_PROPERTIES_BYTES_PER_KEY = 400;
+
+    private static final double MAX_SNAPSHOT_TO_PROPERTIES = 0.6;
+
+    private static final long MAX_SNAPSHOT_INDEX_BYTES_PER_KEY = 40;
+
+    private static Class<?> anchor;
+
+    private static Path generated;
+
+    private static Properties loaded;
+
+    private static Path root;
+
+    @AfterClass
+    public static void cleanup() throws Exception {
+
+        loaded = null;
+        anchor = null;
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                p.toFile().delete();
+            });
+        }
+
+    }
+
+    /*
+     * Configuration.of finds "{environment}.properties" next to a class. The
+     * generated file lives in a temporary directory, so load a copy of this
+     * class through a loader that sees that directory.
+     */
+    @BeforeClass
+    public static void generate() throws Exception {
+
+        final String pkg = ConfigurationStressIT.class.getPackage().getName()
+                .replace('.', '/');
+        root = Files.createTempDirectory("stress");
+        final Path dir = Files.createDirectories(root.resolve(pkg));
+        generated = dir.resolve(ENVIRONMENT + ".properties");
+
+        try (BufferedWriter w = Files.newBufferedWriter(generated,
+                StandardCharsets.ISO_8859_1)) {
+            for (int i = 0; i < KEYS; ++i) {
+                w.write(key(i));
+                w.write('=');
+                w.write(value(i));
+                w.newLine();
+            }
+        }
+
+        final URL classes = ConfigurationStressIT.class.getProtectionDomain()
+                .getCodeSource().getLocation();
+        @SuppressWarnings("resource")
+        final URLClassLoader loader = new URLClassLoader(new URL[] {
+                root.toUri().toURL(), classes }, null);
+        anchor = loader.loadClass(ConfigurationStressIT.class.getName());
+
+        loaded = Configuration.of(anchor, ENVIRONMENT);
+
+    }
+
+    private static long best(final Runnable task) {
+
+        long best = Long.MAX_VALUE;
+        for (int p = 0; p < PASSES; ++p) {
+            final long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+
+    }
+
+    private static Properties chain(final int depth) {
+
+        Properties current = loaded;
+        for (int d = 0; d < depth; ++d) {
+            final Properties from = new Properties();
+            from.setProperty(key(d), "override-" + d);
+            current = Configuration.override(current,
+                    Collections.singleton(key(d)), from);
+        }
+        return current;
+
+    }
+
+    private static String key(final int i) {
+        return (i % 2 == 0 ? WIDE_PREFIX : "service" + i % 97) + ".setting."
+                + i;
+    }
+
+    private static int[] order(final int length) {
+
+        final Random random = new Random(0);
+        final int[] order = new int[length];
+        for (int i = 0; i < length; ++i) {
+            order[i] = random.nextInt(KEYS);
+        }
+        return order;
+
+    }
+
+    private static long percentile(final long[] sorted, final double p) {
+        return sorted[(int) Math.min(sorted.length - 1, sorted.length * p)];
+    }
+
+    /*
+     * time batches of reads from concurrent readers after one untimed pass
+     *
+     * @return sorted nanoseconds per batch
+     */
+    private static long[] readConcurrently(final IntFunction<String> read)
+            throws Exception {
+
+        timeConcurrently(read);
+        return timeConcurrently(read);
+
+    }
+
+    private static long[] timeConcurrently(final IntFunction<String> read)
+            throws Exception {
+
+        final ExecutorService exec = Executors.newFixedThreadPool(READERS);
+        try {
+            final List<Callable<long[]>> readers = new ArrayList<>();
+            for (int r = 0; r < READERS; ++r) {
+                final int[] order = order(READS_PER_READER);
+                readers.add(() -> {
+                    final long[] batches = new long[READS_PER_READER / BATCH];
+                    for (int b = 0; b < batches.length; ++b) {
+                        final long start = System.nanoTime();
+                        for (int i = b * BATCH; i < (b + 1) * BATCH; ++i) {
+                            if (read.apply(order[i]) == null) {
+                                throw new AssertionError("missing "
+                                        + key(order[i]));
+                            }
+                        }
+                        batches[b] = System.nanoTime() - start;
+                    }
+                    return batches;
+                });
+            }
+            final List<long[]> results = new ArrayList<>();
+            for (final Future<long[]> f : exec.invokeAll(readers)) {
+                results.add(f.get());
+            }
+            return results.stream().flatMapToLong(Arrays::stream).sorted()
+                    .toArray();
+        } finally {
+            exec.shutdownNow();
+        }
+
+    }
+
+    private static long usedHeap() {
+
+        final MemoryMXBean mem = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 4; ++i) {
+            System.gc();
+        }
+        return mem.getHeapMemoryUsage().getUsed();
+
+    }
+
+    private static String value(final int i) {
+        return "value-" + Integer.toHexString(i * 0x9E3779B1);
+    }
+
+    @Test
+    public void testAsMap() {
+
+        final String prefix = WIDE_PREFIX + ".";
+        final long scan = best(() -> {
+            final Map<String, String> m = new HashMap<>();
+            loaded.stringPropertyNames().forEach(k -> {
+                if (k.startsWith(prefix)) {
+                    m.put(k.substring(prefix.length()), loaded.getProperty(k));
+                }
+            });
+        });
+        final long asMap = best(() -> Configuration.asMap(loaded, WIDE_PREFIX));
+
+        final Map<String, String> actual = Configuration.asMap(loaded,
+                WIDE_PREFIX);
+        assertEquals(KEYS / 2, actual.size());
+        assertEquals(value(0), actual.get("setting.0"));
+        assertTrue("asMap " + asMap + "ns, scan " + scan + "ns", asMap <= scan
+                * MAX_AS_MAP_TO_SCAN);
+
+    }
+
+    @Test
+    public void testConcurrentLookupLatency() throws Exception {
+
+        final String[] names = new String[KEYS];
+        final ConfigKey[] keys = new ConfigKey[KEYS];
+        final Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < KEYS; ++i) {
+            names[i] = key(i);
+            keys[i] = ConfigKey.of(names[i]);
+            map.put(names[i], loaded.getProperty(names[i]));
+        }
+        final Snapshot snapshot = Configuration.snapshot(loaded);
+
+        final long[] baseline = readConcurrently(k -> map.get(names[k]));
+        final long[] props = readConcurrently(k -> loaded.getProperty(names[k]));
+        final long[] snap = readConcurrently(k -> snapshot.get(keys[k]));
+
+        final String report = "per " + BATCH + " reads: baseline p50/p99 "
+                + percentile(baseline, .5) + "/" + percentile(baseline, .99)
+                + "ns, properties " + percentile(props, .5) + "/"
+                + percentile(props, .99) + "ns, snapshot "
+                + percentile(snap, .5) + "/" + percentile(snap, .99) + "ns";
+
+        for (final long[] measured : Arrays.asList(props, snap)) {
+            assertTrue(report, percentile(measured, .5) <= percentile(
+                    baseline, .5) * MAX_P50_TO_BASELINE);
+            assertTrue(report, percentile(measured, .99) <= percentile(
+                    baseline, .99) * MAX_P99_TO_BASELINE);
+        }
+        assertTrue(report, percentile(snap, .5) <= percentile(props, .5)
+                * MAX_SNAPSHOT_TO_PROPERTIES);
+
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+
+        final long plain = best(() -> {
+            try (InputStream is = Files.newInputStream(generated)) {
+                new Properties().load(is);
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        final long load = best(() -> Configuration.of(anchor, ENVIRONMENT));
+
+        assertEquals(KEYS, Configuration.of(anchor, ENVIRONMENT).size());
+        assertTrue("load " + load + "ns, Properties.load " + plain + "ns",
+                load <= plain * MAX_LOAD_TO_PROPERTIES_LOAD);
+
+    }
+
+    @Test
+    public void testOverrideChain() {
+
+        final Properties shallow = chain(OVERRIDE_DEPTH / 10);
+        final Properties deep = chain(OVERRIDE_DEPTH);
+
+        final String k = key(KEYS - 1);
+        final long shallowNanos = best(() -> {
+            for (int i = 0; i < 1_000; ++i) {
+                shallow.getProperty(k);
+            }
+        });
+        final long deepNanos = best(() -> {
+            for (int i = 0; i < 1_000; ++i) {
+                deep.getProperty(k);
+            }
+        });
+
+        assertEquals(value(KEYS - 1), deep.getProperty(k));
+        assertEquals("override-0", deep.getProperty(key(0)));
+        assertEquals("override-" + (OVERRIDE_DEPTH - 1),
+                deep.getProperty(key(OVERRIDE_DEPTH - 1)));
+        assertTrue("depth " + OVERRIDE_DEPTH + " " + deepNanos
+                + "ns, depth " + OVERRIDE_DEPTH / 10 + " " + shallowNanos
+                + "ns", deepNanos <= shallowNanos * 10
+                * MAX_OVERRIDE_CHAIN_SCALING);
+
+        final Snapshot snapshot = Configuration.snapshot(deep);
+        assertEquals(KEYS, snapshot.size());
+        assertEquals("override-0", snapshot.get(ConfigKey.of(key(0))));
+        assertEquals(value(KEYS - 1), snapshot.get(ConfigKey.of(k)));
+
+    }
+
+    @Test
+    public void testPropertiesRetainedHeap() {
+
+        final long before = usedHeap();
+        final Properties retained = Configuration.of(anchor, ENVIRONMENT);
+        final long perKey = (usedHeap() - before) / KEYS;
+
+        assertEquals(KEYS, retained.size());
+        assertTrue("properties retain " + perKey + " bytes per key",
+                perKey <= MAX_PROPERTIES_BYTES_PER_KEY);
+
+    }
+
+    @Test
+    public void testSnapshotDiff() {
+
+        final Snapshot from = Configuration.snapshot(loaded);
+
+        final Properties overrides = new Properties();
+        overrides.setProperty(key(1), "changed");
+        final Properties changed = Configuration.override(loaded,
+                Collections.singleton(key(1)), overrides);
+
+        final long build = best(() -> Configuration.snapshot(changed, from));
+        final Snapshot to = Configuration.snapshot(changed, from);
+        final long diff = best(() -> from.diff(to));
+
+        final Diff actual = from.diff(to);
+        assertEquals(Collections.singleton(key(1)), actual.changed());
+        assertTrue(actual.added().isEmpty());
+        assertTrue(actual.removed().isEmpty());
+        assertTrue("diff " + diff + "ns, build " + build + "ns", diff <= build
+                * MAX_DIFF_TO_BUILD);
+
+    }
+
+    @Test
+    public void testSnapshotFasterThanProperties() {
+
+        final String[] names = new String[KEYS];
+        final ConfigKey[] keys = new ConfigKey[KEYS];
+        for (int i = 0; i < KEYS; ++i) {
+            names[i] = key(i);
+            keys[i] = ConfigKey.of(names[i]);
+        }
+        final Snapshot snapshot = Configuration.snapshot(loaded);
+        final int[] order = order(READS_PER_READER);
+
+        final long props = best(() -> {
+            for (final int k : order) {
+                loaded.getProperty(names[k]);
+            }
+        });
+        final long snap = best(() -> {
+            for (final int k : order) {
+                snapshot.get(keys[k]);
+            }
+        });
+
+        assertTrue("snapshot " + snap + "ns, properties " + props + "ns",
+                snap <= props * MAX_SNAPSHOT_TO_PROPERTIES);
+
+    }
+
+    /*
+     * the snapshots share key and value strings with the loaded properties,
+     * so this measures the index and grouping arrays alone
+     */
+    @Test
+    public void testSnapshotIndexOverhead() {
+
+        final Snapshot[] retained = new Snapshot[SNAPSHOTS];
+
+        final long before = usedHeap();
+        for (int s = 0; s < SNAPSHOTS; ++s) {
+            retained[s] = Configuration.snapshot(loaded);
+        }
+        final long perKey = (usedHeap() - before) / SNAPSHOTS / KEYS;
+
+        for (final Snapshot s : retained) {
+            assertEquals(KEYS, s.size());
+        }
+        assertTrue("snapshot index retains " + perKey + " bytes per key",
+                perKey <= MAX_SNAPSHOT_INDEX_BYTES_PER_KEY);
+
+    }
+
+}
@@ -29,7 +29,10 @@ import java.util.Properties;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.msiops.garage.configuration.ConfigKey;
 import com.msiops.garage.configuration.Configuration;
+import com.msiops.garage.configuration.Diff;
+import com.msiops.garage.configuration.Snapshot;
 
 public final class ConfigurationTest {
 
@@ -495,6 +498,202 @@ public final class ConfigurationTest {
 
     }
 
+    @Test
+    public void testSnapshot() {
+
+        final Properties expected = load("production");
+
+        final Snapshot actual = Configuration.snapshot(Configuration.of(
+                ConfigurationTest.class, "production"));
+
+        assertEquals(expected.size(), actual.size());
+        expected.stringPropertyNames().forEach(k -> {
+            assertEquals(expected.getProperty(k), actual.get(ConfigKey.of(k)));
+        });
+
+    }
+
+    @Test
+    public void testSnapshotDefaultValue() {
+
+        final Snapshot actual = Configuration.snapshot(new Properties());
+
+        assertEquals("dv", actual.get(ConfigKey.of("no.such.key"), "dv"));
+
+    }
+
+    @Test
+    public void testSnapshotDiff() {
+
+        final Properties props = new Properties();
+        props.setProperty("db.url", "jdbc:one");
+        props.setProperty("db.user", "app");
+        props.setProperty("pool.size", "4");
+        props.setProperty("retired", "yes");
+
+        final Snapshot from = Configuration.snapshot(props);
+
+        props.setProperty("db.url", "jdbc:two");
+        props.setProperty("cache.ttl", "60");
+        props.remove("retired");
+
+        final Diff actual = from.diff(Configuration.snapshot(props, from));
+
+        assertEquals(Collections.singleton("cache.ttl"), actual.added());
+        assertEquals(Collections.singleton("db.url"), actual.changed());
+        assertEquals(Collections.singleton("retired"), actual.removed());
+
+    }
+
+    @Test
+    public void testSnapshotDiffManyKeysChained() {
+
+        final Properties props = new Properties();
+        for (int i = 0; i < 10000; ++i) {
+            props.setProperty("wide.key." + i, "value." + i);
+        }
+        final Snapshot from = Configuration.snapshot(props);
+
+        props.setProperty("wide.key.5000", "changed");
+        props.remove("wide.key.7000");
+        props.setProperty("wide.key.7000x", "added");
+        final Snapshot middle = Configuration.snapshot(props, from);
+        props.setProperty("wide.key.5000", "value.5000");
+        props.setProperty("wide.key.100", "changed");
+        final Snapshot to = Configuration.snapshot(props, middle);
+
+        final Diff actual = from.diff(to);
+
+        assertEquals(Collections.singleton("wide.key.100"), actual.changed());
+        assertEquals(Collections.singleton("wide.key.7000x"), actual.added());
+        assertEquals(Collections.singleton("wide.key.7000"), actual.removed());
+        assertEquals("changed", to.get(ConfigKey.of("wide.key.100")));
+        assertNull(to.get(ConfigKey.of("wide.key.7000")));
+
+    }
+
+    @Test
+    public void testSnapshotDiffUnrelated() {
+
+        final Properties props = new Properties();
+        props.setProperty("db.url", "jdbc:one");
+
+        final Snapshot a = Configuration.snapshot(props);
+        final Snapshot b = Configuration.snapshot(props);
+
+        assertNotEquals(a.version(), b.version());
+        assertTrue(a.diff(b).isEmpty());
+
+    }
+
+    @Test
+    public void testSnapshotDoesNotTrackSource() {
+
+        final ConfigKey key = ConfigKey.of("com.msiops.prop");
+
+        final Properties props = new Properties();
+        props.setProperty(key.name(), "value");
+
+        final Snapshot actual = Configuration.snapshot(props);
+        props.setProperty(key.name(), "changed");
+
+        assertEquals("value", actual.get(key));
+
+    }
+
+    @Test
+    public void testSnapshotIncludesDefaults() {
+
+        final ConfigKey key = ConfigKey.of("com.msiops.prop");
+
+        final Properties defs = new Properties();
+        defs.setProperty(key.name(), "default value");
+
+        final Snapshot actual = Configuration.snapshot(new Properties(defs));
+
+        assertEquals("default value", actual.get(key));
+
+    }
+
+    @Test
+    public void testSnapshotKeySurvivesReload() {
+
+        final ConfigKey key = ConfigKey.of("value.of.something.else");
+
+        final Snapshot dev = Configuration.snapshot(Configuration.of(
+                ConfigurationTest.class, "development"));
+        final Snapshot prod = Configuration.snapshot(Configuration.of(
+                ConfigurationTest.class, "production"));
+
+        assertEquals("Taco", dev.get(key));
+        assertEquals("Duck L'Orange", prod.get(key));
+
+    }
+
+    @Test
+    public void testSnapshotManyKeys() {
+
+        final Properties props = new Properties();
+        for (int i = 0; i < 10000; ++i) {
+            props.setProperty("key." + i, "value." + i);
+        }
+
+        final Snapshot actual = Configuration.snapshot(props);
+
+        for (int i = 0; i < 10000; ++i) {
+            assertEquals("value." + i, actual.get(ConfigKey.of("key." + i)));
+        }
+        assertNull(actual.get(ConfigKey.of("key.10000")));
+
+    }
+
+    @Test
+    public void testSnapshotUnchangedIsPrevious() {
+
+        final Properties props = new Properties();
+        props.setProperty("db.url", "jdbc:one");
+
+        final Snapshot from = Configuration.snapshot(props);
+        final Snapshot actual = Configuration.snapshot(
+                Configuration.detach(props), from);
+
+        assertSame(from, actual);
+
+    }
+
+    @Test
+    public void testSnapshotUnknownKey() {
+
+        final ConfigKey key = ConfigKey.of("com.msiops.added");
+
+        final Properties props = new Properties();
+        props.setProperty("com.msiops.prop", "value");
+
+        final Snapshot actual = Configuration.snapshot(props);
+        props.setProperty(key.name(), "added later");
+
+        assertNull(actual.get(key));
+
+    }
+
+    @Test
+    public void testSnapshotVersionAdvances() {
+
+        final Properties props = new Properties();
+        props.setProperty("db.url", "jdbc:one");
+
+        final Properties overrides = new Properties();
+        overrides.setProperty("db.url", "jdbc:two");
+
+        final Snapshot from = Configuration.snapshot(props);
+        final Snapshot actual = Configuration.snapshot(Configuration.override(
+                props, Collections.singleton("db.url"), overrides), from);
+
+        assertTrue(actual.version() > from.version());
+        assertEquals("jdbc:two", actual.get(ConfigKey.of("db.url")));
+
+    }
+
     @Test
     public void testUnconfiguredEnvironment() {
 
@@ -0,0 +1,147 @@
+/**
+ * Licensed to Media Science International (MSI) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. MSI
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package fn.com.msiops.garage.configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs scheduled tasks on the test thread when time is advanced.
+ */
+final class ManualScheduler extends AbstractExecutorService
+        implements ScheduledExecutorService {
+
+    private static final class Task {
+
+        final long due;
+
+        final Runnable run;
+
+        Task(final long due, final Runnable run) {
+            this.due = due;
+            this.run = run;
+        }
+
+    }
+
+    long now;
+
+    boolean rejecting;
+
+    private final List<Task> tasks = new ArrayList<>();
+
+    void advance(final Duration by) {
+
+        this.now += by.toNanos();
+        boolean ran = true;
+        while (ran) {
+            ran = false;
+            for (final Iterator<Task> i = this.tasks.iterator(); i
+                    .hasNext();) {
+                final Task t = i.next();
+                if (t.due <= this.now) {
+                    i.remove();
+                    t.run.run();
+                    ran = true;
+                    break;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * @return the number of tasks waiting to run.
+     */
+    int pending() {
+        return this.tasks.size();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout,
+            final TimeUnit unit) {
+        return true;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.rejecting;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.rejecting;
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(final Callable<V> callable,
+            final long delay, final TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(final Runnable command,
+            final long delay, final TimeUnit unit) {
+
+        if (this.rejecting) {
+            throw new RejectedExecutionException();
+        }
+        this.tasks.add(new Task(this.now + unit.toNanos(delay), command));
+        return null;
+
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(final Runnable command,
+            final long initialDelay, final long period,
+            final TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(
+            final Runnable command, final long initialDelay,
+            final long delay, final TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void shutdown() {
+        this.rejecting = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        this.rejecting = true;
+        return Collections.emptyList();
+    }
+
+}
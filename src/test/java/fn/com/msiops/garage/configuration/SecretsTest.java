@@ -0,0 +1,456 @@
+/**
+ * Licensed to Media Science International (MSI) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. MSI
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package fn.com.msiops.garage.configuration;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.msiops.garage.configuration.ConfigKey;
+import com.msiops.garage.configuration.Configuration;
+import com.msiops.garage.configuration.KeyFileSecretDecoder;
+import com.msiops.garage.configuration.SecretDecoder;
+import com.msiops.garage.configuration.Secrets;
+
+public final class SecretsTest {
+
+    private static final char[] PASSWORD = "s3cr3t-Pa$$".toCharArray();
+
+    private static final String PASSWORD_ENCODED = "ENC(sdxzLqu5NZHk20CWvB/wcG4BjYf1mkn9E9qBGSizYFJTwaRUHgA/)";
+
+    private static final class ManualClock extends Clock {
+
+        long millis;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(this.millis);
+        }
+
+        @Override
+        public long millis() {
+            return this.millis;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    private static void assertZeroed(final char[] plaintext) {
+        for (final char c : plaintext) {
+            assertEquals('\0', c);
+        }
+    }
+
+    private static Path keyFile() throws Exception {
+        return Paths.get(SecretsTest.class.getResource("secret.key").toURI());
+    }
+
+    private ManualClock clock;
+
+    private List<char[]> decoded;
+
+    private SecretDecoder recording;
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private Properties secured(final Secrets secrets) {
+        return Configuration.of(SecretsTest.class, "secured", new Properties(),
+                secrets);
+    }
+
+    @Before
+    public void setup() throws Exception {
+
+        System.clearProperty(Configuration.ENVIRONMENT_PROPERTY);
+
+        final SecretDecoder decoder = KeyFileSecretDecoder.of(keyFile());
+        this.decoded = new ArrayList<>();
+        this.recording = encoded -> {
+            final char[] plaintext = decoder.decode(encoded);
+            this.decoded.add(plaintext);
+            return plaintext;
+        };
+        this.clock = new ManualClock();
+
+    }
+
+    @Test
+    public void testCapacityEvictsAndZeroesOldest() {
+
+        final Secrets secrets = new Secrets(this.recording, 1,
+                Duration.ofMinutes(1), this.clock);
+        final Properties props = secured(secrets);
+
+        Configuration.reveal(props, "database.password");
+        Configuration.reveal(props, "api.token");
+
+        assertEquals(1, secrets.size());
+        assertZeroed(this.decoded.get(0));
+        assertEquals("token-42", new String(this.decoded.get(1)));
+
+    }
+
+    @Test
+    public void testClearZeroes() {
+
+        final Secrets secrets = new Secrets(this.recording);
+        Configuration.reveal(secured(secrets), "database.password");
+
+        secrets.clear();
+
+        assertEquals(0, secrets.size());
+        assertZeroed(this.decoded.get(0));
+
+    }
+
+    @Test
+    public void testCopiesStayEncoded() {
+
+        final Properties props = secured(new Secrets(this.recording));
+
+        assertEquals(PASSWORD_ENCODED, Configuration.detach(props)
+                .getProperty("database.password"));
+        assertEquals(PASSWORD_ENCODED, Configuration.asMap(props, "database")
+                .get("password"));
+        assertEquals(PASSWORD_ENCODED, Configuration.snapshot(props).get(
+                ConfigKey.of("database.password")));
+        assertTrue(this.decoded.isEmpty());
+
+    }
+
+    @Test
+    public void testDecodedLazily() {
+
+        final Properties props = secured(new Secrets(this.recording));
+
+        assertArrayEquals("app".toCharArray(),
+                Configuration.reveal(props, "database.user"));
+        assertTrue(this.decoded.isEmpty());
+
+        assertArrayEquals(PASSWORD,
+                Configuration.reveal(props, "database.password"));
+        assertEquals(1, this.decoded.size());
+
+    }
+
+    @Test
+    public void testDecodedOnceWhileCached() {
+
+        final Properties props = secured(new Secrets(this.recording));
+
+        Configuration.reveal(props, "database.password");
+        Configuration.reveal(props, "database.password");
+
+        assertEquals(1, this.decoded.size());
+
+    }
+
+    @Test
+    public void testDetachKeepsSecrets() {
+
+        final Properties props = Configuration.detach(secured(new Secrets(
+                this.recording)));
+
+        assertArrayEquals(PASSWORD,
+                Configuration.reveal(props, "database.password"));
+
+    }
+
+    @Test
+    public void testEncodeRoundTrip() throws Exception {
+
+        final Path key = this.tmp.getRoot().toPath().resolve("test.key");
+        KeyFileSecretDecoder.generateKeyFile(key);
+        final KeyFileSecretDecoder decoder = KeyFileSecretDecoder.of(key);
+
+        final String encoded = decoder.encode("plain text".toCharArray());
+
+        assertEquals("plain text", new String(decoder.decode(encoded)));
+
+    }
+
+    @Test
+    public void testExpiredPurgedOnReveal() {
+
+        final Secrets secrets = new Secrets(this.recording, 8,
+                Duration.ofSeconds(30), this.clock);
+        final Properties props = secured(secrets);
+
+        Configuration.reveal(props, "database.password");
+        this.clock.millis += 30_000;
+        Configuration.reveal(props, "api.token");
+
+        assertEquals(1, secrets.size());
+        assertZeroed(this.decoded.get(0));
+
+    }
+
+    @Test
+    public void testExpiredPurgedWithoutReveal() {
+
+        final ManualScheduler scheduler = new ManualScheduler();
+        final Secrets secrets = new Secrets(this.recording, 8,
+                Duration.ofSeconds(30), this.clock, scheduler);
+        final Properties props = secured(secrets);
+
+        Configuration.reveal(props, "database.password");
+        this.clock.millis += 10_000;
+        scheduler.advance(Duration.ofSeconds(10));
+        Configuration.reveal(props, "api.token");
+
+        this.clock.millis += 20_000;
+        scheduler.advance(Duration.ofSeconds(20));
+
+        assertEquals(1, secrets.size());
+        assertZeroed(this.decoded.get(0));
+        assertEquals(1, scheduler.pending());
+
+        this.clock.millis += 10_000;
+        scheduler.advance(Duration.ofSeconds(10));
+
+        assertEquals(0, secrets.size());
+        assertZeroed(this.decoded.get(1));
+        assertEquals(0, scheduler.pending());
+
+    }
+
+    @Test
+    public void testExpiredZeroedAndDecodedAgain() {
+
+        final Secrets secrets = new Secrets(this.recording, 8,
+                Duration.ofSeconds(30), this.clock);
+        final Properties props = secured(secrets);
+
+        Configuration.reveal(props, "database.password");
+        this.clock.millis += 30_000;
+        secrets.purge();
+
+        assertEquals(0, secrets.size());
+        assertZeroed(this.decoded.get(0));
+
+        assertArrayEquals(PASSWORD,
+                Configuration.reveal(props, "database.password"));
+        assertEquals(2, this.decoded.size());
+
+    }
+
+    @Test
+    public void testGetPropertyStaysEncoded() {
+
+        final Properties props = secured(new Secrets(this.recording));
+
+        assertEquals(PASSWORD_ENCODED, props.getProperty("database.password"));
+        assertTrue(this.decoded.isEmpty());
+
+    }
+
+    @Test
+    public void testLoadExplicitEnvironment() {
+
+        final Properties props = Configuration.of(SecretsTest.class,
+                "secured", new Secrets(this.recording));
+
+        assertArrayEquals(PASSWORD,
+                Configuration.reveal(props, "database.password"));
+
+    }
+
+    @Test
+    public void testLoadOverSecretDefaults() {
+
+        final Properties props = Configuration.of(SecretsTest.class,
+                "development", secured(new Secrets(this.recording)));
+
+        assertArrayEquals(PASSWORD,
+                Configuration.reveal(props, "database.password"));
+
+    }
+
+    @Test
+    public void testLoadWithDefaults() {
+
+        final Properties defs = new Properties();
+        defs.setProperty("not.from.loaded", "default value");
+
+        System.setProperty(Configuration.ENVIRONMENT_PROPERTY, "secured");
+        final Properties props = Configuration.of(SecretsTest.class, defs,
+                new Secrets(this.recording));
+
+        assertEquals("default value", props.getProperty("not.from.loaded"));
+        assertArrayEquals(PASSWORD,
+                Configuration.reveal(props, "database.password"));
+
+    }
+
+    @Test
+    public void testNotSet() {
+
+        final Properties props = secured(new Secrets(this.recording));
+
+        assertNull(Configuration.reveal(props, "no.such.key"));
+        assertFalse(Configuration.reveal(props, "no.such.key", v -> {
+            fail("action run");
+        }));
+
+    }
+
+    @Test
+    public void testOverrideKeepsSecrets() {
+
+        final Properties props = secured(new Secrets(this.recording));
+
+        final Properties actual = Configuration.override(props,
+                Collections.singleton("database.user"), new Properties());
+
+        assertArrayEquals(PASSWORD,
+                Configuration.reveal(actual, "database.password"));
+
+    }
+
+    @Test
+    public void testRejectedPurgeCachesNothing() {
+
+        final ManualScheduler scheduler = new ManualScheduler();
+        scheduler.shutdown();
+        final Secrets secrets = new Secrets(this.recording, 8,
+                Duration.ofMinutes(1), this.clock, scheduler);
+
+        assertArrayEquals(PASSWORD,
+                Configuration.reveal(secured(secrets), "database.password"));
+
+        assertEquals(0, secrets.size());
+        assertZeroed(this.decoded.get(0));
+
+    }
+
+    @Test
+    public void testRevealedCopyOwnedByCaller() {
+
+        final Properties props = secured(new Secrets(this.recording));
+
+        final char[] first = Configuration.reveal(props, "database.password");
+        Arrays.fill(first, 'x');
+
+        assertArrayEquals(PASSWORD,
+                Configuration.reveal(props, "database.password"));
+        assertEquals(1, this.decoded.size());
+
+    }
+
+    @Test
+    public void testRevealedToActionZeroed() {
+
+        final Properties props = secured(new Secrets(this.recording));
+
+        final List<char[]> seen = new ArrayList<>();
+        assertTrue(Configuration.reveal(props, "database.password", v -> {
+            assertArrayEquals(PASSWORD, v);
+            seen.add(v);
+        }));
+
+        assertZeroed(seen.get(0));
+
+    }
+
+    @Test
+    public void testRevealWithoutBinding() {
+
+        final Properties props = Configuration.of(SecretsTest.class,
+                "secured");
+        final Secrets secrets = new Secrets(this.recording);
+
+        assertArrayEquals(PASSWORD,
+                secrets.reveal(props, "database.password"));
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnboundSecretRejected() {
+
+        final Properties props = Configuration.of(SecretsTest.class,
+                "secured");
+
+        Configuration.reveal(props, "database.password");
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongKey() throws Exception {
+
+        final Path key = this.tmp.getRoot().toPath().resolve("other.key");
+        KeyFileSecretDecoder.generateKeyFile(key);
+
+        Configuration.reveal(secured(new Secrets(KeyFileSecretDecoder.of(key))),
+                "database.password");
+
+    }
+
+    @Test
+    public void testZeroCapacityCachesNothing() {
+
+        final Secrets secrets = new Secrets(this.recording, 0,
+                Duration.ofMinutes(1), this.clock);
+
+        assertArrayEquals(PASSWORD,
+                Configuration.reveal(secured(secrets), "database.password"));
+
+        assertEquals(0, secrets.size());
+        assertZeroed(this.decoded.get(0));
+
+    }
+
+    @Test
+    public void testZeroTtlCachesNothing() {
+
+        final Secrets secrets = new Secrets(this.recording, 8, Duration.ZERO,
+                this.clock);
+
+        assertArrayEquals(PASSWORD,
+                Configuration.reveal(secured(secrets), "database.password"));
+
+        assertEquals(0, secrets.size());
+        assertZeroed(this.decoded.get(0));
+
+    }
+
+}
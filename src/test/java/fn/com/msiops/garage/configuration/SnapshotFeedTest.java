@@ -0,0 +1,340 @@
+/**
+ * Licensed to Media Science International (MSI) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. MSI
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package fn.com.msiops.garage.configuration;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.msiops.garage.configuration.ConfigKey;
+import com.msiops.garage.configuration.Configuration;
+import com.msiops.garage.configuration.Diff;
+import com.msiops.garage.configuration.Snapshot;
+import com.msiops.garage.configuration.SnapshotFeed;
+
+public final class SnapshotFeedTest {
+
+    private static final Duration WINDOW = Duration.ofMillis(100);
+
+    private List<RuntimeException> errors;
+
+    private SnapshotFeed feed;
+
+    private Properties props;
+
+    private ManualScheduler scheduler;
+
+    private void change(final String key, final String value) {
+
+        this.props.setProperty(key, value);
+        this.feed.publish(this.props);
+
+    }
+
+    @Before
+    public void setup() {
+
+        this.props = new Properties();
+        this.props.setProperty("db.url", "jdbc:0");
+        this.props.setProperty("pool.size", "4");
+
+        this.errors = new ArrayList<>();
+        this.scheduler = new ManualScheduler();
+        this.feed = new SnapshotFeed(Configuration.snapshot(this.props),
+                WINDOW, this.scheduler, (s, e) -> this.errors.add(e));
+
+    }
+
+    @Test
+    public void testBurstCoalesced() {
+
+        final List<Diff> received = new ArrayList<>();
+        this.feed.subscribe(received::add);
+
+        for (int i = 1; i <= 50; ++i) {
+            this.props.setProperty("db.url", "jdbc:" + i);
+            this.props.setProperty("burst." + i, "x");
+            this.feed.publish(this.props);
+        }
+        this.scheduler.advance(WINDOW);
+
+        assertEquals(1, received.size());
+        final Diff actual = received.get(0);
+        assertEquals(Collections.singleton("db.url"), actual.changed());
+        assertEquals(50, actual.added().size());
+        assertSame(this.feed.current(), actual.to());
+
+    }
+
+    @Test
+    public void testCurrentNotBlockedByPublish() throws Exception {
+
+        final Snapshot before = this.feed.current();
+        final ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            final List<Snapshot> seen = new ArrayList<>();
+            final Properties slow = new Properties() {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public Set<String> stringPropertyNames() {
+                    try {
+                        seen.add(reader.submit(
+                                () -> SnapshotFeedTest.this.feed.current())
+                                .get(10, TimeUnit.SECONDS));
+                    } catch (final Exception e) {
+                        throw new AssertionError(e);
+                    }
+                    return super.stringPropertyNames();
+                }
+
+            };
+            slow.setProperty("db.url", "jdbc:1");
+
+            this.feed.publish(slow);
+
+            assertEquals(Collections.singletonList(before), seen);
+        } finally {
+            reader.shutdownNow();
+        }
+
+    }
+
+    @Test
+    public void testEachSubscriberGetsOwnDiff() {
+
+        final List<Diff> early = new ArrayList<>();
+        final List<Diff> late = new ArrayList<>();
+
+        this.feed.subscribe(early::add);
+        change("db.url", "jdbc:1");
+        this.feed.subscribe(late::add);
+        change("pool.size", "8");
+        this.scheduler.advance(WINDOW);
+
+        assertEquals(1, early.size());
+        assertEquals(new HashSet<>(Arrays.asList("db.url", "pool.size")),
+                early.get(0).changed());
+        assertEquals(1, late.size());
+        assertEquals(Collections.singleton("pool.size"), late.get(0)
+                .changed());
+
+    }
+
+    @Test
+    public void testFailingSubscriberReportedAndRetried() {
+
+        final List<Diff> received = new ArrayList<>();
+        final IllegalStateException failure = new IllegalStateException();
+        final boolean[] failing = { true };
+        this.feed.subscribe(d -> {
+            if (failing[0]) {
+                throw failure;
+            }
+            received.add(d);
+        });
+        final List<Diff> other = new ArrayList<>();
+        this.feed.subscribe(other::add);
+
+        change("db.url", "jdbc:1");
+        this.scheduler.advance(WINDOW);
+
+        assertEquals(Collections.singletonList(failure), this.errors);
+        assertEquals(1, other.size());
+        assertEquals(1, this.scheduler.pending());
+
+        failing[0] = false;
+        change("pool.size", "8");
+        this.scheduler.advance(WINDOW);
+
+        assertEquals(1, received.size());
+        assertEquals(new HashSet<>(Arrays.asList("db.url", "pool.size")),
+                received.get(0).changed());
+
+    }
+
+    @Test
+    public void testFailingSubscriberRetriedWithoutPublish() {
+
+        final List<Diff> received = new ArrayList<>();
+        final int[] failures = { 2 };
+        this.feed.subscribe(d -> {
+            if (failures[0]-- > 0) {
+                throw new IllegalStateException();
+            }
+            received.add(d);
+        });
+        final List<Diff> other = new ArrayList<>();
+        this.feed.subscribe(other::add);
+
+        change("db.url", "jdbc:1");
+        this.scheduler.advance(WINDOW);
+        this.scheduler.advance(WINDOW);
+        this.scheduler.advance(WINDOW);
+
+        assertEquals(2, this.errors.size());
+        assertEquals(1, received.size());
+        assertEquals(Collections.singleton("db.url"), received.get(0)
+                .changed());
+        assertEquals(1, other.size());
+        assertEquals(0, this.scheduler.pending());
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeWindow() {
+
+        new SnapshotFeed(Configuration.snapshot(this.props),
+                Duration.ofMillis(-1), this.scheduler, (s, e) -> {
+                });
+
+    }
+
+    @Test
+    public void testNoEventBeforeWindowCloses() {
+
+        final List<Diff> received = new ArrayList<>();
+        this.feed.subscribe(received::add);
+
+        change("db.url", "jdbc:1");
+        this.scheduler.advance(WINDOW.minusNanos(1));
+
+        assertTrue(received.isEmpty());
+
+    }
+
+    @Test
+    public void testNoEventWhenBurstReverts() {
+
+        final List<Diff> received = new ArrayList<>();
+        this.feed.subscribe(received::add);
+
+        change("db.url", "jdbc:1");
+        change("db.url", "jdbc:0");
+        this.scheduler.advance(WINDOW);
+
+        assertTrue(received.isEmpty());
+
+    }
+
+    @Test
+    public void testNoEventWhenUnchanged() {
+
+        final List<Diff> received = new ArrayList<>();
+        this.feed.subscribe(received::add);
+
+        final long version = this.feed.current().version();
+        this.feed.publish(Configuration.detach(this.props));
+        this.scheduler.advance(WINDOW);
+
+        assertEquals(version, this.feed.current().version());
+        assertTrue(received.isEmpty());
+        assertEquals(0, this.scheduler.pending());
+
+    }
+
+    @Test
+    public void testRejectedScheduleRetried() {
+
+        final List<Diff> received = new ArrayList<>();
+        this.feed.subscribe(received::add);
+
+        this.scheduler.rejecting = true;
+        try {
+            change("db.url", "jdbc:1");
+            fail("schedule not rejected");
+        } catch (final RejectedExecutionException e) {
+            // expected
+        }
+        assertEquals("jdbc:1",
+                this.feed.current().get(ConfigKey.of("db.url")));
+
+        this.scheduler.rejecting = false;
+        this.feed.publish(this.props);
+        this.scheduler.advance(WINDOW);
+
+        assertEquals(1, received.size());
+        assertEquals(Collections.singleton("db.url"), received.get(0)
+                .changed());
+
+    }
+
+    @Test
+    public void testSeparateBurstsSeparateEvents() {
+
+        final List<Diff> received = new ArrayList<>();
+        this.feed.subscribe(received::add);
+
+        change("db.url", "jdbc:1");
+        this.scheduler.advance(WINDOW);
+        change("db.url", "jdbc:2");
+        this.scheduler.advance(WINDOW);
+
+        assertEquals(2, received.size());
+        assertSame(received.get(0).to(), received.get(1).from());
+
+    }
+
+    @Test
+    public void testUnsubscribe() {
+
+        final List<Diff> received = new ArrayList<>();
+        final Consumer<Diff> subscriber = received::add;
+        this.feed.subscribe(subscriber);
+        this.feed.unsubscribe(subscriber);
+
+        change("db.url", "jdbc:1");
+        this.scheduler.advance(WINDOW);
+
+        assertTrue(received.isEmpty());
+
+    }
+
+    @Test
+    public void testWindowStartsAtFirstUpdate() {
+
+        final List<Diff> received = new ArrayList<>();
+        this.feed.subscribe(received::add);
+
+        change("db.url", "jdbc:1");
+        this.scheduler.advance(WINDOW.dividedBy(2));
+        change("pool.size", "8");
+        this.scheduler.advance(WINDOW.dividedBy(2));
+
+        assertEquals(1, received.size());
+        assertEquals(new HashSet<>(Arrays.asList("db.url", "pool.size")),
+                received.get(0).changed());
+
+    }
+
+}